@@ -16,6 +16,10 @@ import java.util.stream.Collectors;
 @SpringBootApplication
 public class JavaDocGeneratorApplication {
 
+    // Diagnostics kept for error messages; large runs can emit far more than are useful
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int MAX_REPORTED_OTHER_DIAGNOSTICS = 20;
+
     public static void main(String[] args) {
         SpringApplication.run(JavaDocGeneratorApplication.class, args);
     }
@@ -60,7 +64,7 @@ public class JavaDocGeneratorApplication {
             throw new IOException("Java compiler not available. Ensure JDK is used instead of JRE.");
         }
 
-        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        BoundedDiagnosticListener diagnostics = new BoundedDiagnosticListener(MAX_REPORTED_ERRORS, MAX_REPORTED_OTHER_DIAGNOSTICS);
         StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
 
         Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(javaFiles);
@@ -103,16 +107,10 @@ public class JavaDocGeneratorApplication {
         fileManager.close();
 
         // Log diagnostics
-        StringBuilder diagnosticMessages = new StringBuilder();
-        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
-            diagnosticMessages.append(String.format("JavaDoc Error: %s at %s:%d%n",
-                    diagnostic.getMessage(null),
-                    diagnostic.getSource() != null ? diagnostic.getSource().getName() : "unknown",
-                    diagnostic.getLineNumber()));
-        }
+        String diagnosticMessages = diagnostics.getMessages();
 
         if (!success) {
-            throw new IOException("JavaDoc generation failed: " + diagnosticMessages.toString());
+            throw new IOException("JavaDoc generation failed: " + diagnosticMessages);
         }
 
         // Verify output for HTML files
@@ -143,6 +141,56 @@ public class JavaDocGeneratorApplication {
         return null;
     }
 
+    // Formats diagnostics as they arrive, keeping only the first few instead of every Diagnostic object.
+    // Errors get their own buffer so that early warnings and notes cannot crowd them out.
+    private static class BoundedDiagnosticListener implements DiagnosticListener<JavaFileObject> {
+        private final DiagnosticBuffer errors;
+        private final DiagnosticBuffer others;
+
+        BoundedDiagnosticListener(int errorLimit, int otherLimit) {
+            this.errors = new DiagnosticBuffer(errorLimit);
+            this.others = new DiagnosticBuffer(otherLimit);
+        }
+
+        @Override
+        public synchronized void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+            DiagnosticBuffer buffer = diagnostic.getKind() == Diagnostic.Kind.ERROR ? errors : others;
+            buffer.add(String.format("JavaDoc %s: %s at %s:%d%n",
+                    diagnostic.getKind(),
+                    diagnostic.getMessage(null),
+                    diagnostic.getSource() != null ? diagnostic.getSource().getName() : "unknown",
+                    diagnostic.getLineNumber()));
+        }
+
+        synchronized String getMessages() {
+            return errors.toString() + others;
+        }
+    }
+
+    private static class DiagnosticBuffer {
+        private final int limit;
+        private final StringBuilder messages = new StringBuilder();
+        private int count;
+
+        DiagnosticBuffer(int limit) {
+            this.limit = limit;
+        }
+
+        void add(String message) {
+            if (count++ < limit) {
+                messages.append(message);
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (count <= limit) {
+                return messages.toString();
+            }
+            return messages + String.format("... %d more omitted%n", count - limit);
+        }
+    }
+
     // Placeholder for future GitHub integration
     /*
     public static void generateJavaDocFromGitHub(String repoUrl, String branch, String outputDir, String classpath) throws IOException {
@@ -2,6 +2,13 @@ package org.example.controller;
 
 import org.example.JavaDocGeneratorApplication;
 import org.example.model.JavaDocRequest;
+import org.example.service.AdmissionControlService;
+import org.example.service.AdmissionRejectedException;
+import org.example.service.JobCost;
+import org.example.service.JobTimeoutException;
+import org.example.service.JobTooLargeException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,6 +21,9 @@ import java.util.List;
 @RequestMapping("/api/javadoc")
 public class JavaDocController {
 
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
     @PostMapping("/generate")
     public ResponseEntity<String> generateJavaDoc(@RequestBody JavaDocRequest request) {
         try {
@@ -37,9 +47,22 @@ public class JavaDocController {
                         .body("No Java files found in the specified directory");
             }
 
-            JavaDocGeneratorApplication.generateJavaDoc(javaFiles, request.getOutputDir(), request.getClasspath());
+            admissionControlService.submit("javadoc", JobCost.of(javaFiles), () -> {
+                JavaDocGeneratorApplication.generateJavaDoc(javaFiles, request.getOutputDir(), request.getClasspath());
+                return null;
+            });
             return ResponseEntity.ok("JavaDoc generated successfully at: " + request.getOutputDir());
 
+        } catch (AdmissionRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body("Error generating JavaDoc: " + e.getMessage());
+        } catch (JobTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Error generating JavaDoc: " + e.getMessage());
+        } catch (JobTimeoutException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Error generating JavaDoc: " + e.getMessage());
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error generating JavaDoc: " + e.getMessage());
@@ -1,17 +1,26 @@
 package org.example.controller;
 
+import org.example.model.RenderLatencyStats;
+import org.example.service.AdmissionControlService;
+import org.example.service.AdmissionRejectedException;
+import org.example.service.JobCost;
+import org.example.service.JobTimeoutException;
+import org.example.service.JobTooLargeException;
+import org.example.service.PlantUMLRenderService;
 import org.example.service.UMLGeneratorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/uml")
@@ -23,11 +32,21 @@ public class UMLController {
     @Autowired
     private UMLGeneratorService umlGeneratorService;
 
+    @Autowired
+    private AdmissionControlService admissionControlService;
+
+    @Autowired
+    private PlantUMLRenderService renderService;
+
     @PostMapping("/generate")
     public ResponseEntity<?> generateUML(@RequestParam("directoryPath") String directoryPath) {
         logger.info("Received request with directoryPath: {}", directoryPath);
         try {
-            File diagramFile = umlGeneratorService.generateUMLDiagram(directoryPath);
+            List<File> javaFiles = umlGeneratorService.collectJavaFiles(directoryPath);
+            JobCost cost = JobCost.of(javaFiles);
+            AdmissionControlService.JobClass jobClass = admissionControlService.classify(cost);
+            File diagramFile = admissionControlService.submit("uml", cost,
+                    () -> umlGeneratorService.generateUMLDiagram(javaFiles, jobClass));
             if (!diagramFile.exists() || !diagramFile.canRead()) {
                 logger.error("Generated diagram file is not accessible: {}", diagramFile.getAbsolutePath());
                 return ResponseEntity.status(500).body("Generated diagram file is not accessible");
@@ -39,6 +58,17 @@ public class UMLController {
                     .contentType(MediaType.IMAGE_PNG)
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + diagramFile.getName() + "\"")
                     .body(resource);
+        } catch (AdmissionRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body("Error generating UML diagram: " + e.getMessage());
+        } catch (JobTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("Error generating UML diagram: " + e.getMessage());
+        } catch (JobTimeoutException e) {
+            logger.error("UML generation timed out: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Error generating UML diagram: " + e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("Invalid directory path: {}", e.getMessage());
             return ResponseEntity.badRequest().body("Invalid directory path: " + e.getMessage());
@@ -50,4 +80,9 @@ public class UMLController {
             return ResponseEntity.status(500).body("Unexpected error: " + e.getMessage());
         }
     }
+
+    @GetMapping("/render-stats")
+    public ResponseEntity<RenderLatencyStats> getRenderStats() {
+        return ResponseEntity.ok(renderService.getLatencyStats());
+    }
 }
@@ -0,0 +1,116 @@
+package org.example.model;
+
+// Percentiles cover every render a worker picked up: successful, failed and timed-out ones,
+// measured from pick-up, the latter at the timeout. Renders rejected before starting are only counted.
+// stuckWorkers are workers retired after a timeout whose render is still running.
+public class RenderLatencyStats {
+    private long renderCount;
+    private long timeoutCount;
+    private long failureCount;
+    private long rejectedCount;
+    private int inFlightRenders;
+    private int queuedRenders;
+    private int stuckWorkers;
+    private int sampleSize;
+    private long p50Millis;
+    private long p90Millis;
+    private long p99Millis;
+    private long maxMillis;
+
+    // Getters and setters
+    public long getRenderCount() {
+        return renderCount;
+    }
+
+    public void setRenderCount(long renderCount) {
+        this.renderCount = renderCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public void setTimeoutCount(long timeoutCount) {
+        this.timeoutCount = timeoutCount;
+    }
+
+    public long getFailureCount() {
+        return failureCount;
+    }
+
+    public void setFailureCount(long failureCount) {
+        this.failureCount = failureCount;
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public void setRejectedCount(long rejectedCount) {
+        this.rejectedCount = rejectedCount;
+    }
+
+    public int getInFlightRenders() {
+        return inFlightRenders;
+    }
+
+    public void setInFlightRenders(int inFlightRenders) {
+        this.inFlightRenders = inFlightRenders;
+    }
+
+    public int getQueuedRenders() {
+        return queuedRenders;
+    }
+
+    public void setQueuedRenders(int queuedRenders) {
+        this.queuedRenders = queuedRenders;
+    }
+
+    public int getStuckWorkers() {
+        return stuckWorkers;
+    }
+
+    public void setStuckWorkers(int stuckWorkers) {
+        this.stuckWorkers = stuckWorkers;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public long getP50Millis() {
+        return p50Millis;
+    }
+
+    public void setP50Millis(long p50Millis) {
+        this.p50Millis = p50Millis;
+    }
+
+    public long getP90Millis() {
+        return p90Millis;
+    }
+
+    public void setP90Millis(long p90Millis) {
+        this.p90Millis = p90Millis;
+    }
+
+    public long getP99Millis() {
+        return p99Millis;
+    }
+
+    public void setP99Millis(long p99Millis) {
+        this.p99Millis = p99Millis;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public void setMaxMillis(long maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+}
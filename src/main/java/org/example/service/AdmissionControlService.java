@@ -0,0 +1,319 @@
+package org.example.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for generation jobs.
+ *
+ * Jobs are classified as SMALL or LARGE by their estimated cost. Each class has its own
+ * concurrency slots, heap budget, wait queue and per-job timeout, so a few large runs can
+ * saturate their own class without slowing down small requests. Work that cannot be
+ * admitted within the queue wait is rejected with a retry hint.
+ *
+ * Heap budgets are fractions of the JVM's max heap. The concurrency defaults are set high
+ * enough that on typical heaps the heap budget, not the slot count, is what stops
+ * big jobs from piling up; a job whose estimate exceeds its whole budget is refused.
+ */
+@Service
+public class AdmissionControlService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlService.class);
+
+    public enum JobClass { SMALL, LARGE }
+
+    // Jobs at or below both thresholds are SMALL
+    @Value("${admission.small.max-files:200}")
+    private int smallMaxFiles;
+
+    @Value("${admission.small.max-bytes:2097152}")
+    private long smallMaxBytes;
+
+    // Rough heap needed per job: source bytes times this factor, plus a fixed cost per file
+    @Value("${admission.heap-bytes-per-source-byte:20}")
+    private int heapBytesPerSourceByte;
+
+    @Value("${admission.heap-bytes-per-file:65536}")
+    private long heapBytesPerFile;
+
+    // Heap the budgets are carved from; 0 means the JVM's max heap
+    @Value("${admission.max-heap-bytes:0}")
+    private long maxHeapBytes;
+
+    @Value("${admission.small.concurrency:8}")
+    private int smallConcurrency;
+
+    @Value("${admission.small.heap-fraction:0.2}")
+    private double smallHeapFraction;
+
+    @Value("${admission.small.queue-size:16}")
+    private int smallQueueSize;
+
+    @Value("${admission.small.queue-wait-ms:2000}")
+    private long smallQueueWaitMs;
+
+    @Value("${admission.small.timeout-seconds:60}")
+    private long smallTimeoutSeconds;
+
+    @Value("${admission.large.concurrency:2}")
+    private int largeConcurrency;
+
+    @Value("${admission.large.heap-fraction:0.5}")
+    private double largeHeapFraction;
+
+    @Value("${admission.large.queue-size:4}")
+    private int largeQueueSize;
+
+    @Value("${admission.large.queue-wait-ms:5000}")
+    private long largeQueueWaitMs;
+
+    @Value("${admission.large.timeout-seconds:600}")
+    private long largeTimeoutSeconds;
+
+    private Lane smallLane;
+    private Lane largeLane;
+    private ExecutorService executor;
+    private final AtomicLong jobIds = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        long heapBytes = maxHeapBytes > 0 ? maxHeapBytes : Runtime.getRuntime().maxMemory();
+        smallLane = new Lane(JobClass.SMALL, smallConcurrency, (long) (heapBytes * smallHeapFraction), smallQueueSize,
+                smallQueueWaitMs, TimeUnit.SECONDS.toMillis(smallTimeoutSeconds));
+        largeLane = new Lane(JobClass.LARGE, largeConcurrency, (long) (heapBytes * largeHeapFraction), largeQueueSize,
+                largeQueueWaitMs, TimeUnit.SECONDS.toMillis(largeTimeoutSeconds));
+        logger.info("Admission heap budgets: small {} MB, large {} MB of {} MB max heap",
+                smallLane.memoryBudgetKb / 1024, largeLane.memoryBudgetKb / 1024, heapBytes / (1024 * 1024));
+
+        // Thread count is bounded by the concurrency slots, which are taken before submitting
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "admission-job-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public JobClass classify(JobCost cost) {
+        return cost.getFileCount() <= smallMaxFiles && cost.getTotalBytes() <= smallMaxBytes
+                ? JobClass.SMALL : JobClass.LARGE;
+    }
+
+    /**
+     * Runs the job once its class has a free slot and enough heap budget.
+     *
+     * If the job exceeds its timeout the caller is released and the job is interrupted, but
+     * its slot and budget stay reserved until it actually stops, so an uninterruptible job
+     * cannot let more work in than the budget allows.
+     */
+    public <T> T submit(String jobName, JobCost cost, Callable<T> job)
+            throws AdmissionRejectedException, JobTooLargeException, JobTimeoutException, IOException {
+        Lane lane = classify(cost) == JobClass.SMALL ? smallLane : largeLane;
+        int memoryUnits = lane.memoryUnitsFor(jobName, cost);
+        long jobId = jobIds.incrementAndGet();
+
+        lane.acquire(jobName, cost, memoryUnits);
+        logger.info("Admitted {} job ({}) as {}", jobName, cost, lane.jobClass);
+
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                // Whoever claims first (the worker or a cancelling caller) releases the permits
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                long start = System.nanoTime();
+                lane.running.put(jobId, start);
+                try {
+                    T result = job.call();
+                    // Only completed jobs count, so fast failures do not shorten the retry hint
+                    lane.recordDuration(System.nanoTime() - start);
+                    return result;
+                } finally {
+                    lane.release(jobId, memoryUnits);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            lane.release(jobId, memoryUnits);
+            throw new IOException("Job executor is not accepting work", e);
+        }
+
+        try {
+            return future.get(lane.timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            cancel(future, claimed, lane, jobId, memoryUnits);
+            logger.warn("{} job ({}) exceeded the {} ms timeout", jobName, cost, lane.timeoutMs);
+            throw new JobTimeoutException(jobName + " job exceeded the timeout of " + lane.timeoutMs + " ms");
+        } catch (InterruptedException e) {
+            cancel(future, claimed, lane, jobId, memoryUnits);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + jobName + " job", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof JobTimeoutException) {
+                throw (JobTimeoutException) cause;
+            }
+            if (cause instanceof AdmissionRejectedException) {
+                throw (AdmissionRejectedException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(jobName + " job failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    // Number of callers waiting for admission in the given class
+    int waitingJobs(JobClass jobClass) {
+        return (jobClass == JobClass.SMALL ? smallLane : largeLane).waiting.get();
+    }
+
+    private void cancel(Future<?> future, AtomicBoolean claimed, Lane lane, long jobId, int memoryUnits) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            // The job never started, so nobody else will release its permits
+            lane.release(jobId, memoryUnits);
+        }
+    }
+
+    private final class Lane {
+        private final JobClass jobClass;
+        private final Semaphore slots;
+        private final Semaphore memoryKb;
+        private final int memoryBudgetKb;
+        private final int concurrency;
+        private final int queueSize;
+        private final long queueWaitMs;
+        private final long timeoutMs;
+        private final AtomicInteger waiting = new AtomicInteger();
+        // Start time of every job still holding a slot, including ones past their timeout
+        private final Map<Long, Long> running = new ConcurrentHashMap<>();
+        private volatile double averageDurationMs;
+
+        Lane(JobClass jobClass, int concurrency, long memoryBudgetBytes, int queueSize, long queueWaitMs, long timeoutMs) {
+            this.jobClass = jobClass;
+            this.concurrency = Math.max(1, concurrency);
+            this.memoryBudgetKb = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudgetBytes / 1024));
+            this.queueSize = Math.max(1, queueSize);
+            this.queueWaitMs = queueWaitMs;
+            this.timeoutMs = timeoutMs;
+            // Fair so that a job needing a large share of the budget is not starved by smaller ones
+            this.slots = new Semaphore(this.concurrency, true);
+            this.memoryKb = new Semaphore(memoryBudgetKb, true);
+        }
+
+        int memoryUnitsFor(String jobName, JobCost cost) throws JobTooLargeException {
+            long estimatedBytes = cost.getTotalBytes() * heapBytesPerSourceByte
+                    + cost.getFileCount() * heapBytesPerFile;
+            long estimatedKb = Math.max(1, estimatedBytes / 1024);
+            if (estimatedKb > memoryBudgetKb) {
+                logger.warn("Refused {} job ({}): needs about {} MB, {} budget is {} MB",
+                        jobName, cost, estimatedKb / 1024, jobClass, memoryBudgetKb / 1024);
+                throw new JobTooLargeException(jobName + " job needs about " + estimatedKb / 1024
+                        + " MB of heap, more than the " + memoryBudgetKb / 1024 + " MB available to "
+                        + jobClass.name().toLowerCase() + " jobs");
+            }
+            return (int) estimatedKb;
+        }
+
+        void acquire(String jobName, JobCost cost, int memoryUnits) throws AdmissionRejectedException, IOException {
+            if (waiting.incrementAndGet() > queueSize) {
+                waiting.decrementAndGet();
+                throw reject(jobName, cost, "queue is full", waiting.get());
+            }
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueWaitMs);
+                if (!slots.tryAcquire(queueWaitMs, TimeUnit.MILLISECONDS)) {
+                    // This caller is still counted in waiting until the finally below
+                    throw reject(jobName, cost, "no free slot", waiting.get() - 1);
+                }
+                if (!memoryKb.tryAcquire(memoryUnits, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    slots.release();
+                    throw reject(jobName, cost, "memory budget exhausted", waiting.get() - 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for admission", e);
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        void release(long jobId, int memoryUnits) {
+            running.remove(jobId);
+            memoryKb.release(memoryUnits);
+            slots.release();
+        }
+
+        void recordDuration(long nanos) {
+            double ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            double previous = averageDurationMs;
+            averageDurationMs = previous == 0 ? ms : 0.8 * previous + 0.2 * ms;
+        }
+
+        private AdmissionRejectedException reject(String jobName, JobCost cost, String reason, int waitingAhead) {
+            long retryAfter = retryAfterSeconds(Math.max(0, waitingAhead));
+            logger.warn("Rejected {} job ({}) as {}: {}. Retry after {} s", jobName, cost, jobClass, reason, retryAfter);
+            return new AdmissionRejectedException(
+                    "Too many " + jobClass.name().toLowerCase() + " jobs in progress (" + reason + ")", retryAfter);
+        }
+
+        // Time until the first running job frees its slot, plus the time for the queue ahead to drain
+        private long retryAfterSeconds(int waitingAhead) {
+            double expectedMs = averageDurationMs > 0 ? averageDurationMs : queueWaitMs;
+            long now = System.nanoTime();
+            double soonestMs = 0;
+            boolean first = true;
+            for (long start : running.values()) {
+                double remainingMs = remainingMs(TimeUnit.NANOSECONDS.toMillis(now - start), expectedMs);
+                soonestMs = first ? remainingMs : Math.min(soonestMs, remainingMs);
+                first = false;
+            }
+            double drainMs = soonestMs + expectedMs * waitingAhead / concurrency;
+            return Math.max(1, (long) Math.ceil(drainMs / 1000));
+        }
+
+        private double remainingMs(long elapsedMs, double expectedMs) {
+            if (elapsedMs < expectedMs) {
+                return expectedMs - elapsedMs;
+            }
+            if (elapsedMs < timeoutMs) {
+                return timeoutMs - elapsedMs;
+            }
+            // Past its timeout and still running, so it ignored interruption; assume another full period
+            return timeoutMs;
+        }
+    }
+}
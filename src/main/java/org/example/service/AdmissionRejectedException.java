@@ -0,0 +1,19 @@
+package org.example.service;
+
+/**
+ * Thrown when a job cannot be admitted because its job class is saturated.
+ * Callers should answer with HTTP 429 and a Retry-After header.
+ */
+public class AdmissionRejectedException extends Exception {
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.service;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Estimated cost of a generation job, measured by the number of .java source files
+ * and their total size in bytes.
+ */
+public final class JobCost {
+
+    private final int fileCount;
+    private final long totalBytes;
+
+    public JobCost(int fileCount, long totalBytes) {
+        this.fileCount = fileCount;
+        this.totalBytes = totalBytes;
+    }
+
+    // Estimate from files that have already been collected
+    public static JobCost of(List<File> javaFiles) {
+        long bytes = 0;
+        for (File file : javaFiles) {
+            bytes += file.length();
+        }
+        return new JobCost(javaFiles.size(), bytes);
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public String toString() {
+        return fileCount + " files, " + totalBytes + " bytes";
+    }
+}
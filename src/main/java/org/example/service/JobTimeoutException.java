@@ -0,0 +1,11 @@
+package org.example.service;
+
+/**
+ * Thrown when an admitted job does not finish within its per-job timeout.
+ */
+public class JobTimeoutException extends Exception {
+
+    public JobTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.service;
+
+/**
+ * Thrown when a job's estimated heap need exceeds the whole budget of its job class, so it
+ * could never be admitted. Callers should answer with HTTP 413 rather than ask for a retry.
+ */
+public class JobTooLargeException extends Exception {
+
+    public JobTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,350 @@
+package org.example.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import net.sourceforge.plantuml.FileFormat;
+import net.sourceforge.plantuml.FileFormatOption;
+import net.sourceforge.plantuml.SourceStringReader;
+import org.example.model.RenderLatencyStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders PlantUML sources on bounded worker pools, one per admission job class.
+ *
+ * PlantUML is warmed up at startup so the first real request does not pay for class
+ * loading, font initialisation and Graphviz discovery. Each render has a timeout, counted
+ * from when a worker picks it up, and SMALL jobs have their own workers so large renders
+ * cannot delay them.
+ *
+ * PlantUML may ignore interruption, so a timed-out render can keep its thread busy. That
+ * worker is retired and a replacement is started, so the pool keeps its full capacity.
+ * Retired workers are capped per pool; once the cap is reached new renders are rejected
+ * until a stuck render finishes.
+ */
+@Service
+public class PlantUMLRenderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlantUMLRenderService.class);
+
+    // Small class diagram with a relation, so the warm-up also goes through Graphviz layout
+    static final String WARM_UP_SOURCE = "@startuml\nclass WarmUpA {\n  -field\n  +method()\n}\nclass WarmUpB\nWarmUpA --> WarmUpB\n@enduml";
+
+    // Number of recent render durations kept for percentile calculation
+    private static final int LATENCY_SAMPLES = 1024;
+
+    // Render task states
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+    private static final int ABANDONED = 4;
+
+    @Value("${render.small.pool-size:2}")
+    private int smallPoolSize;
+
+    @Value("${render.small.queue-size:16}")
+    private int smallQueueSize;
+
+    @Value("${render.small.timeout-seconds:30}")
+    private long smallTimeoutSeconds;
+
+    @Value("${render.large.pool-size:1}")
+    private int largePoolSize;
+
+    @Value("${render.large.queue-size:4}")
+    private int largeQueueSize;
+
+    @Value("${render.large.timeout-seconds:120}")
+    private long largeTimeoutSeconds;
+
+    // Stuck workers each pool may carry before it stops accepting renders
+    @Value("${render.max-stuck-workers:4}")
+    private int maxStuckWorkers;
+
+    @Value("${render.warm-up:true}")
+    private boolean warmUp;
+
+    private RenderPool smallPool;
+    private RenderPool largePool;
+
+    private final long[] latencySamples = new long[LATENCY_SAMPLES];
+    private int latencySampleCount;
+    private int latencySampleIndex;
+    private final AtomicLong renderCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        smallPool = new RenderPool("small", smallPoolSize, smallQueueSize, smallTimeoutSeconds, maxStuckWorkers);
+        largePool = new RenderPool("large", largePoolSize, largeQueueSize, largeTimeoutSeconds, maxStuckWorkers);
+
+        if (warmUp) {
+            // Own thread so startup is not delayed and a hung warm-up cannot take a pool worker;
+            // PlantUML's class and font state is shared by both pools
+            Thread warmUpThread = new Thread(() -> {
+                long start = System.nanoTime();
+                try {
+                    draw(WARM_UP_SOURCE);
+                    logger.info("PlantUML warm-up completed in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                } catch (Exception e) {
+                    logger.warn("PlantUML warm-up failed: {}", e.getMessage());
+                }
+            }, "plantuml-warm-up");
+            warmUpThread.setDaemon(true);
+            warmUpThread.start();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        smallPool.executor.shutdownNow();
+        largePool.executor.shutdownNow();
+    }
+
+    /**
+     * Renders the source as PNG on the pool for the given job class.
+     *
+     * A render that is not picked up by a worker within the timeout is rejected like a full
+     * queue. A render that runs past the timeout is abandoned and its worker retired.
+     */
+    public byte[] renderPng(String plantUMLSource, AdmissionControlService.JobClass jobClass)
+            throws IOException, JobTimeoutException, AdmissionRejectedException {
+        RenderPool pool = jobClass == AdmissionControlService.JobClass.SMALL ? smallPool : largePool;
+        if (pool.stuckWorkers() >= pool.maxStuckWorkers) {
+            throw reject(pool, "has too many stuck renders", pool.timeoutSeconds);
+        }
+
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        CompletableFuture<Long> started = new CompletableFuture<>();
+        Future<byte[]> future;
+        try {
+            future = pool.executor.submit(() -> {
+                // A caller that gave up while the render was queued has already cancelled it
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    return null;
+                }
+                pool.inFlight.incrementAndGet();
+                started.complete(System.nanoTime());
+                try {
+                    return draw(plantUMLSource);
+                } finally {
+                    pool.inFlight.decrementAndGet();
+                    if (!state.compareAndSet(RUNNING, DONE)) {
+                        // The caller abandoned this render and retired the worker; give its place back
+                        pool.workerRecovered();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw reject(pool, "queue is full", pool.retryAfterSeconds());
+        }
+
+        long startNanos;
+        try {
+            startNanos = started.get(pool.timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            if (state.compareAndSet(QUEUED, CANCELLED)) {
+                future.cancel(false);
+                pool.executor.remove((Runnable) future);
+                throw reject(pool, "did not start the render within " + pool.timeoutSeconds + " s", pool.retryAfterSeconds());
+            }
+            // Picked up just as the wait ended
+            startNanos = started.join();
+        } catch (InterruptedException e) {
+            abandon(pool, state, future);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for PlantUML render", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Render start signal failed", e);
+        }
+
+        long remainingNanos = startNanos + TimeUnit.SECONDS.toNanos(pool.timeoutSeconds) - System.nanoTime();
+        try {
+            byte[] image;
+            try {
+                image = future.get(remainingNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (state.compareAndSet(RUNNING, ABANDONED)) {
+                    future.cancel(true);
+                    pool.retireWorker();
+                    timeoutCount.incrementAndGet();
+                    recordLatency(System.nanoTime() - startNanos);
+                    logger.warn("PlantUML {} render exceeded the {} s timeout; worker retired, {} stuck",
+                            pool.name, pool.timeoutSeconds, pool.stuckWorkers());
+                    throw new JobTimeoutException("PlantUML render exceeded the timeout of " + pool.timeoutSeconds + " s");
+                }
+                // Finished right at the deadline
+                image = future.get();
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            renderCount.incrementAndGet();
+            recordLatency(elapsed);
+            pool.recordDuration(elapsed);
+            return image;
+        } catch (InterruptedException e) {
+            abandon(pool, state, future);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for PlantUML render", e);
+        } catch (ExecutionException e) {
+            failureCount.incrementAndGet();
+            recordLatency(System.nanoTime() - startNanos);
+            Throwable cause = e.getCause();
+            throw new IOException("PlantUML render failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    public RenderLatencyStats getLatencyStats() {
+        long[] samples;
+        synchronized (latencySamples) {
+            samples = Arrays.copyOf(latencySamples, latencySampleCount);
+        }
+        Arrays.sort(samples);
+
+        RenderLatencyStats stats = new RenderLatencyStats();
+        stats.setRenderCount(renderCount.get());
+        stats.setTimeoutCount(timeoutCount.get());
+        stats.setFailureCount(failureCount.get());
+        stats.setRejectedCount(rejectedCount.get());
+        stats.setInFlightRenders(smallPool.inFlight.get() + largePool.inFlight.get());
+        stats.setQueuedRenders(smallPool.executor.getQueue().size() + largePool.executor.getQueue().size());
+        stats.setStuckWorkers(smallPool.stuckWorkers() + largePool.stuckWorkers());
+        stats.setSampleSize(samples.length);
+        stats.setP50Millis(percentile(samples, 0.50));
+        stats.setP90Millis(percentile(samples, 0.90));
+        stats.setP99Millis(percentile(samples, 0.99));
+        stats.setMaxMillis(samples.length > 0 ? samples[samples.length - 1] : 0);
+        return stats;
+    }
+
+    // Package-private so tests can substitute a render
+    byte[] draw(String plantUMLSource) throws IOException {
+        SourceStringReader reader = new SourceStringReader(plantUMLSource);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        reader.outputImage(output, new FileFormatOption(FileFormat.PNG));
+        return output.toByteArray();
+    }
+
+    // Stops waiting for a render: drops it if still queued, otherwise retires its worker
+    private void abandon(RenderPool pool, AtomicInteger state, Future<byte[]> future) {
+        if (state.compareAndSet(QUEUED, CANCELLED)) {
+            future.cancel(false);
+            pool.executor.remove((Runnable) future);
+        } else if (state.compareAndSet(RUNNING, ABANDONED)) {
+            future.cancel(true);
+            pool.retireWorker();
+        }
+    }
+
+    private AdmissionRejectedException reject(RenderPool pool, String reason, long retryAfter) {
+        rejectedCount.incrementAndGet();
+        logger.warn("PlantUML {} render pool {}. Retry after {} s", pool.name, reason, retryAfter);
+        return new AdmissionRejectedException("PlantUML " + pool.name + " render pool " + reason, retryAfter);
+    }
+
+    // Latency is measured from when a worker picks up the render
+    private void recordLatency(long nanos) {
+        synchronized (latencySamples) {
+            latencySamples[latencySampleIndex] = TimeUnit.NANOSECONDS.toMillis(nanos);
+            latencySampleIndex = (latencySampleIndex + 1) % LATENCY_SAMPLES;
+            if (latencySampleCount < LATENCY_SAMPLES) {
+                latencySampleCount++;
+            }
+        }
+    }
+
+    static long percentile(long[] sortedSamples, double percentile) {
+        if (sortedSamples.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedSamples.length) - 1;
+        return sortedSamples[Math.max(0, index)];
+    }
+
+    private static final class RenderPool {
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final int poolSize;
+        private final long timeoutSeconds;
+        private final int maxStuckWorkers;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private int stuckWorkers;
+        private volatile double averageDurationMs;
+
+        RenderPool(String name, int poolSize, int queueSize, long timeoutSeconds, int maxStuckWorkers) {
+            this.name = name;
+            this.poolSize = Math.max(1, poolSize);
+            this.timeoutSeconds = timeoutSeconds;
+            this.maxStuckWorkers = Math.max(1, maxStuckWorkers);
+
+            AtomicInteger threadCounter = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(this.poolSize, this.poolSize, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "plantuml-render-" + name + "-" + threadCounter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.prestartAllCoreThreads();
+        }
+
+        synchronized int stuckWorkers() {
+            return stuckWorkers;
+        }
+
+        // The stuck thread stays counted in the pool, so grow it by one to keep full capacity
+        synchronized void retireWorker() {
+            stuckWorkers++;
+            resize();
+        }
+
+        synchronized void workerRecovered() {
+            stuckWorkers--;
+            resize();
+        }
+
+        private void resize() {
+            int size = poolSize + stuckWorkers;
+            // The maximum may never drop below the core size, so order the updates by direction
+            if (size > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(size);
+                executor.setCorePoolSize(size);
+                executor.prestartCoreThread();
+            } else {
+                executor.setCorePoolSize(size);
+                executor.setMaximumPoolSize(size);
+            }
+        }
+
+        void recordDuration(long nanos) {
+            double ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            double previous = averageDurationMs;
+            averageDurationMs = previous == 0 ? ms : 0.8 * previous + 0.2 * ms;
+        }
+
+        // Time for the queued renders to drain, based on recent render times
+        long retryAfterSeconds() {
+            double expectedMs = averageDurationMs > 0 ? averageDurationMs : 1000;
+            double drainMs = expectedMs * (executor.getQueue().size() + 1) / poolSize;
+            return Math.max(1, (long) Math.ceil(drainMs / 1000));
+        }
+    }
+}
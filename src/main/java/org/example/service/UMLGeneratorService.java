@@ -1,8 +1,6 @@
 package org.example.service;
 
-import net.sourceforge.plantuml.SourceStringReader;
-import net.sourceforge.plantuml.FileFormat;
-import net.sourceforge.plantuml.FileFormatOption;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
@@ -10,33 +8,44 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 @Service
 public class UMLGeneratorService {
 
-    public File generateUMLDiagram(String directoryPath) throws IOException {
+    @Autowired
+    private PlantUMLRenderService renderService;
+
+    public List<File> collectJavaFiles(String directoryPath) throws IOException {
         File directory = new File(directoryPath);
         if (!directory.exists() || !directory.isDirectory()) {
             throw new IllegalArgumentException("Invalid directory path");
         }
 
-        StringBuilder plantUML = new StringBuilder();
-        plantUML.append("@startuml\n");
-
         try (Stream<Path> paths = Files.walk(directory.toPath())) {
-            paths.filter(Files::isRegularFile)
+            return paths.filter(Files::isRegularFile)
                     .filter(path -> path.toString().endsWith(".java"))
-                    .forEach(path -> processJavaFile(path, plantUML));
+                    .map(Path::toFile)
+                    .collect(Collectors.toList());
         }
+    }
+
+    public File generateUMLDiagram(List<File> javaFiles, AdmissionControlService.JobClass jobClass)
+            throws IOException, JobTimeoutException, AdmissionRejectedException {
+        StringBuilder plantUML = new StringBuilder();
+        plantUML.append("@startuml\n");
+
+        javaFiles.forEach(file -> processJavaFile(file.toPath(), plantUML));
 
         plantUML.append("@enduml");
 
-        // Generate PNG file from PlantUML string
+        // Generate PNG file from PlantUML string on the render pool
+        byte[] image = renderService.renderPng(plantUML.toString(), jobClass);
         File outputFile = new File("uml_diagram.png");
-        SourceStringReader reader = new SourceStringReader(plantUML.toString());
         try (FileOutputStream output = new FileOutputStream(outputFile)) {
-            reader.outputImage(output, new FileFormatOption(FileFormat.PNG));
+            output.write(image);
         }
 
         return outputFile;
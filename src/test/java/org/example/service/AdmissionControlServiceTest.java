@@ -0,0 +1,221 @@
+package org.example.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlServiceTest {
+
+    private static final JobCost SMALL_JOB = new JobCost(1, 100);
+
+    private AdmissionControlService service;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        service = new AdmissionControlService();
+        ReflectionTestUtils.setField(service, "smallMaxFiles", 10);
+        ReflectionTestUtils.setField(service, "smallMaxBytes", 10_000L);
+        ReflectionTestUtils.setField(service, "heapBytesPerSourceByte", 1);
+        ReflectionTestUtils.setField(service, "heapBytesPerFile", 1024L);
+        // 16 MB budget per class
+        ReflectionTestUtils.setField(service, "maxHeapBytes", 32L * 1024 * 1024);
+        ReflectionTestUtils.setField(service, "smallConcurrency", 1);
+        ReflectionTestUtils.setField(service, "smallHeapFraction", 0.5);
+        ReflectionTestUtils.setField(service, "smallQueueSize", 1);
+        ReflectionTestUtils.setField(service, "smallQueueWaitMs", 2000L);
+        ReflectionTestUtils.setField(service, "smallTimeoutSeconds", 1L);
+        ReflectionTestUtils.setField(service, "largeConcurrency", 1);
+        ReflectionTestUtils.setField(service, "largeHeapFraction", 0.5);
+        ReflectionTestUtils.setField(service, "largeQueueSize", 1);
+        ReflectionTestUtils.setField(service, "largeQueueWaitMs", 2000L);
+        ReflectionTestUtils.setField(service, "largeTimeoutSeconds", 1L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void classifiesByFileCountAndBytes() {
+        assertEquals(AdmissionControlService.JobClass.SMALL, service.classify(SMALL_JOB));
+        assertEquals(AdmissionControlService.JobClass.LARGE, service.classify(new JobCost(11, 100)));
+        assertEquals(AdmissionControlService.JobClass.LARGE, service.classify(new JobCost(1, 10_001)));
+    }
+
+    @Test
+    void admitsAndReturnsResult() throws Exception {
+        assertEquals("done", service.submit("test", SMALL_JOB, () -> "done"));
+        // The slot is released afterwards
+        assertEquals("again", service.submit("test", SMALL_JOB, () -> "again"));
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Object> holder = CompletableFuture.supplyAsync(() -> submitQuietly(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Second caller waits for the only slot and fills the queue of size one
+        CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> submitQuietly(() -> null));
+        awaitWaitingJobs(1);
+
+        long start = System.nanoTime();
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> service.submit("test", SMALL_JOB, () -> null));
+        assertTrue(rejected.getMessage().contains("queue is full"));
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+        // Rejected up front rather than after the 2 s queue wait
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        waiter.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void memoryBudgetLimitsAdmission() throws Exception {
+        // Each one-file job now needs 10 MB of the 16 MB budget, so only one fits despite two slots
+        ReflectionTestUtils.setField(service, "heapBytesPerFile", 10L * 1024 * 1024);
+        ReflectionTestUtils.setField(service, "smallConcurrency", 2);
+        ReflectionTestUtils.setField(service, "smallQueueWaitMs", 200L);
+        service.shutdown();
+        service.init();
+
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Object> holder = CompletableFuture.supplyAsync(() -> submitQuietly(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> service.submit("test", SMALL_JOB, () -> null));
+        assertTrue(rejected.getMessage().contains("memory budget exhausted"));
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertEquals("admitted", submitWhenFree());
+    }
+
+    @Test
+    void refusesJobThatCanNeverFit() {
+        ReflectionTestUtils.setField(service, "heapBytesPerFile", 10L * 1024 * 1024);
+        service.shutdown();
+        service.init();
+
+        AtomicBoolean ran = new AtomicBoolean();
+        assertThrows(JobTooLargeException.class, () -> service.submit("test", new JobCost(2, 100), () -> {
+            ran.set(true);
+            return null;
+        }));
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void timedOutJobKeepsItsSlotUntilItStops() throws Exception {
+        CountDownLatch stopped = new CountDownLatch(1);
+        assertThrows(JobTimeoutException.class, () -> service.submit("test", SMALL_JOB, () -> {
+            // Ignores interruption, like an in-process compiler task
+            while (true) {
+                try {
+                    if (release.await(5, TimeUnit.SECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException ignored) {
+                    // keep running
+                }
+            }
+            stopped.countDown();
+            return null;
+        }));
+
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> service.submit("test", SMALL_JOB, () -> null));
+        assertTrue(rejected.getMessage().contains("no free slot"));
+        // The runaway job is past its 1 s timeout, so the hint covers another full period
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+
+        release.countDown();
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertEquals("admitted", submitWhenFree());
+    }
+
+    @Test
+    void cancelBeforeStartReleasesPermits() throws Exception {
+        // Replace the executor with one whose only thread is busy, so the job cannot start in time
+        ExecutorService busy = Executors.newSingleThreadExecutor();
+        busy.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ReflectionTestUtils.setField(service, "executor", busy);
+
+        AtomicBoolean ran = new AtomicBoolean();
+        assertThrows(JobTimeoutException.class, () -> service.submit("test", SMALL_JOB, () -> {
+            ran.set(true);
+            return null;
+        }));
+
+        release.countDown();
+        assertEquals("admitted", submitWhenFree());
+        assertFalse(ran.get());
+        busy.shutdownNow();
+    }
+
+    private Object submitQuietly(Callable<Object> job) {
+        try {
+            return service.submit("test", SMALL_JOB, job);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void awaitWaitingJobs(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.waitingJobs(AdmissionControlService.JobClass.SMALL) < expected) {
+            assertTrue(System.nanoTime() < deadline, "caller never started waiting");
+            Thread.sleep(10);
+        }
+    }
+
+    // The worker releases its slot just after the job returns, so allow a short grace period
+    private Object submitWhenFree() throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            try {
+                return service.submit("test", SMALL_JOB, () -> "admitted");
+            } catch (AdmissionRejectedException e) {
+                if (System.nanoTime() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.example.service;
+
+import org.example.model.RenderLatencyStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.example.service.AdmissionControlService.JobClass.SMALL;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlantUMLRenderServiceTest {
+
+    private static final String HANG = "hang";
+    private static final String FAIL = "fail";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger warmUps = new AtomicInteger();
+    private final AtomicInteger renders = new AtomicInteger();
+    private PlantUMLRenderService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PlantUMLRenderService() {
+            @Override
+            byte[] draw(String source) throws IOException {
+                if (source.equals(WARM_UP_SOURCE)) {
+                    warmUps.incrementAndGet();
+                    return new byte[0];
+                }
+                renders.incrementAndGet();
+                if (source.equals(HANG)) {
+                    awaitReleaseIgnoringInterrupts();
+                }
+                if (source.equals(FAIL)) {
+                    throw new IOException("broken diagram");
+                }
+                return source.getBytes(StandardCharsets.UTF_8);
+            }
+        };
+        ReflectionTestUtils.setField(service, "smallPoolSize", 1);
+        ReflectionTestUtils.setField(service, "smallQueueSize", 1);
+        ReflectionTestUtils.setField(service, "smallTimeoutSeconds", 1L);
+        ReflectionTestUtils.setField(service, "largePoolSize", 1);
+        ReflectionTestUtils.setField(service, "largeQueueSize", 1);
+        ReflectionTestUtils.setField(service, "largeTimeoutSeconds", 1L);
+        ReflectionTestUtils.setField(service, "maxStuckWorkers", 2);
+        ReflectionTestUtils.setField(service, "warmUp", true);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void percentilesUseNearestRank() {
+        long[] samples = new long[100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = i + 1;
+        }
+        assertEquals(50, PlantUMLRenderService.percentile(samples, 0.50));
+        assertEquals(90, PlantUMLRenderService.percentile(samples, 0.90));
+        assertEquals(99, PlantUMLRenderService.percentile(samples, 0.99));
+        assertEquals(7, PlantUMLRenderService.percentile(new long[] {7}, 0.99));
+        assertEquals(0, PlantUMLRenderService.percentile(new long[0], 0.50));
+    }
+
+    @Test
+    void warmsUpAtStartup() throws Exception {
+        awaitCondition(() -> warmUps.get() == 1);
+        assertEquals(0, service.getLatencyStats().getSampleSize());
+    }
+
+    @Test
+    void rendersAndRecordsLatency() throws Exception {
+        assertArrayEquals("ok".getBytes(StandardCharsets.UTF_8), service.renderPng("ok", SMALL));
+
+        RenderLatencyStats stats = service.getLatencyStats();
+        assertEquals(1, stats.getRenderCount());
+        assertEquals(1, stats.getSampleSize());
+        assertEquals(0, stats.getInFlightRenders());
+    }
+
+    @Test
+    void failedRenderIsSampled() {
+        assertThrows(IOException.class, () -> service.renderPng(FAIL, SMALL));
+
+        RenderLatencyStats stats = service.getLatencyStats();
+        assertEquals(1, stats.getFailureCount());
+        assertEquals(1, stats.getSampleSize());
+    }
+
+    @Test
+    void timeoutRetiresStuckWorkerAndKeepsCapacity() throws Exception {
+        assertThrows(JobTimeoutException.class, () -> service.renderPng(HANG, SMALL));
+
+        RenderLatencyStats stats = service.getLatencyStats();
+        assertEquals(1, stats.getTimeoutCount());
+        assertEquals(1, stats.getStuckWorkers());
+        assertEquals(1, stats.getInFlightRenders());
+        // Timed-out renders are sampled at the timeout
+        assertTrue(stats.getP99Millis() >= 1000);
+
+        // A replacement worker serves the next render even though the stuck one is still busy
+        assertArrayEquals("ok".getBytes(StandardCharsets.UTF_8), service.renderPng("ok", SMALL));
+
+        release.countDown();
+        awaitCondition(() -> service.getLatencyStats().getStuckWorkers() == 0);
+        assertEquals(0, service.getLatencyStats().getInFlightRenders());
+    }
+
+    @Test
+    void stuckWorkerCapRejectsNewRenders() throws Exception {
+        ReflectionTestUtils.setField(service, "maxStuckWorkers", 1);
+        service.shutdown();
+        service.init();
+
+        assertThrows(JobTimeoutException.class, () -> service.renderPng(HANG, SMALL));
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> service.renderPng("ok", SMALL));
+        assertTrue(rejected.getMessage().contains("too many stuck renders"));
+
+        release.countDown();
+        awaitCondition(() -> service.getLatencyStats().getStuckWorkers() == 0);
+        assertArrayEquals("ok".getBytes(StandardCharsets.UTF_8), service.renderPng("ok", SMALL));
+    }
+
+    @Test
+    void fullQueueIsRejected() throws Exception {
+        // Longer timeout so the queued render is still waiting when the queue is checked
+        ReflectionTestUtils.setField(service, "smallTimeoutSeconds", 5L);
+        service.shutdown();
+        service.init();
+        occupySmallWorker();
+
+        CompletableFuture<byte[]> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.renderPng("queued", SMALL);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        awaitCondition(() -> service.getLatencyStats().getQueuedRenders() == 1);
+
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> service.renderPng("ok", SMALL));
+        assertTrue(rejected.getMessage().contains("queue is full"));
+        assertTrue(rejected.getRetryAfterSeconds() >= 1);
+        assertEquals(1, service.getLatencyStats().getRejectedCount());
+
+        release.countDown();
+        assertArrayEquals("queued".getBytes(StandardCharsets.UTF_8), queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void renderThatNeverStartsIsRejectedAndNotSampled() throws Exception {
+        occupySmallWorker();
+
+        AdmissionRejectedException rejected = assertThrows(AdmissionRejectedException.class,
+                () -> service.renderPng("ok", SMALL));
+        assertTrue(rejected.getMessage().contains("did not start"));
+
+        RenderLatencyStats stats = service.getLatencyStats();
+        assertEquals(1, stats.getRejectedCount());
+        assertEquals(0, stats.getTimeoutCount());
+        assertEquals(0, stats.getSampleSize());
+        // The cancelled render was taken out of the queue and never drawn
+        assertEquals(0, stats.getQueuedRenders());
+        assertEquals(0, renders.get());
+    }
+
+    // Blocks the only small worker without going through renderPng, so it is never timed out
+    private void occupySmallWorker() throws InterruptedException {
+        Object pool = ReflectionTestUtils.getField(service, "smallPool");
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(pool, "executor");
+        CountDownLatch busy = new CountDownLatch(1);
+        executor.execute(() -> {
+            busy.countDown();
+            awaitReleaseIgnoringInterrupts();
+        });
+        assertTrue(busy.await(5, TimeUnit.SECONDS));
+    }
+
+    // Mimics a PlantUML layout that does not respond to interruption
+    private void awaitReleaseIgnoringInterrupts() {
+        while (true) {
+            try {
+                release.await();
+                return;
+            } catch (InterruptedException ignored) {
+                // keep running
+            }
+        }
+    }
+
+    private void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in time");
+            Thread.sleep(10);
+        }
+    }
+}